@@ -1,5 +1,6 @@
  module tinyclj.compiler {
   requires transitive tinyclj.core;
+  requires jdk.jfr;
   
   exports tcljc.main;
   
@@ -18,6 +19,7 @@
   exports tcljc.emitter.emitfn;
   exports tcljc.emitter.exprcode;
   exports tcljc.emitter.namespace;
+  exports tcljc.emitter.peephole;
   exports tcljc.emitter.prepare;
   exports tcljc.expr;
   exports tcljc.exprfold;
@@ -27,18 +29,24 @@
   exports tcljc.macro;
   exports tcljc.main.beachhead;
   exports tcljc.main.builder;
+  exports tcljc.main.cache;
+  exports tcljc.main.chrcache;
+  exports tcljc.main.daemon;
   exports tcljc.main.efmt;
   exports tcljc.main.invoke;
+  exports tcljc.main.jar;
   exports tcljc.main.options;
   exports tcljc.main.publics;
   exports tcljc.main.task;
   exports tcljc.main.tclj0;
   exports tcljc.main.tclj1;
+  exports tcljc.main.timings;
   exports tcljc.main.watcher;
   exports tcljc.parser;
   exports tcljc.predefined;
   exports tcljc.reader;
   exports tcljc.runtime;
+  exports tcljc.stackmap;
   exports tcljc.synquote;
   exports tcljc.type;
   exports tcljc.util;
@@ -53,6 +53,9 @@ volatile public static ExecutorService pooledExecutor =
 volatile public static ExecutorService soloExecutor = Executors.newCachedThreadPool(
 	createThreadFactory("clojure-agent-send-off-pool-%d", sendOffThreadPoolCounter));
 
+volatile public static ExecutorService virtualExecutor = Executors.newThreadPerTaskExecutor(
+	Thread.ofVirtual().name("clojure-pmap-", 0).factory());
+
 final static ThreadLocal<IPersistentVector> nested = new ThreadLocal<IPersistentVector>();
 
 private static ThreadFactory createThreadFactory(final String format, final AtomicLong threadPoolCounter) {
@@ -68,6 +71,7 @@ private static ThreadFactory createThreadFactory(final String format, final Atom
 public static void shutdown(){
 	soloExecutor.shutdown();
 	pooledExecutor.shutdown();
+	virtualExecutor.shutdown();
 }
 
 static class Action implements Runnable{
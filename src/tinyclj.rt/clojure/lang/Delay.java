@@ -12,20 +12,32 @@
 
 package clojure.lang;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 public class Delay implements IDeref, IPending{
 Object val;
 Throwable exception;
 IFn fn;
-volatile Lock lock;
+// null before realization, REALIZED afterwards, and the realizing
+// thread while fn runs.  Read with acquire and written with release
+// semantics, which publishes val and exception.
+private Object state;
+
+private static final Object REALIZED = new Object();
+private static final VarHandle STATE;
+static {
+	try {
+		STATE = MethodHandles.lookup().findVarHandle(Delay.class, "state", Object.class);
+	} catch (ReflectiveOperationException e) {
+		throw new ExceptionInInitializerError(e);
+	}
+}
 
 public Delay(IFn f){
 	fn = f;
 	val = null;
 	exception = null;
-	lock = new ReentrantLock();
 }
 
 static public Object force(Object x) {
@@ -35,27 +47,29 @@ static public Object force(Object x) {
 }
 
 private void realize() {
-	Lock l = lock;
-	if(l != null) {
-		l.lock();
-		try {
-			if(fn!=null) {
+	for(int round = 0; ; round++) {
+		Object st = STATE.getAcquire(this);
+		if(st == REALIZED)
+			return;
+		if(st == null) {
+			if(STATE.compareAndSet(this, null, Thread.currentThread())) {
 				try {
 					val = fn.invoke();
 				} catch (Throwable t) {
 					exception = t;
 				}
 				fn = null;
-				lock = null;
+				STATE.setRelease(this, REALIZED);
+				return;
 			}
-		} finally {
-			l.unlock();
+		} else {
+			Util.awaitRealizer(st, round);
 		}
 	}
 }
 
 public Object deref() {
-	if(lock != null)
+	if(STATE.getAcquire(this) != REALIZED)
 		realize();
 	if(exception != null)
 		throw Util.sneakyThrow(exception);
@@ -63,6 +77,6 @@ public Object deref() {
 }
 
 public boolean isRealized(){
-	return lock == null;
+	return STATE.getAcquire(this) == REALIZED;
 }
 }
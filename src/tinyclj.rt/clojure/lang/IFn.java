@@ -100,6 +100,23 @@ public interface IFn /*extends Callable, Runnable*/ {
   default Object applyTo(ISeq arglist) {
       try {
         int n = RT.count(arglist); // Clojure bounds this to 20
+        // compiled functions override the fixed arity `invoke`
+        // methods with direct calls of their arity methods
+        if (n == 0) {
+          return invoke();
+        } else if (n <= 4) {
+          Object[] a = new Object[4];
+          ISeq s = arglist;
+          for (int i = 0; i < n; i++, s = s.next()) {
+            a[i] = s.first();
+          }
+          switch (n) {
+          case 1: return invoke(a[0]);
+          case 2: return invoke(a[0], a[1]);
+          case 3: return invoke(a[0], a[1], a[2]);
+          default: return invoke(a[0], a[1], a[2], a[3]);
+          }
+        }
         var mh = __arity(this, n);
         // alternative: mh.bindTo(this).invokeWithArguments((List)arglist)
         return mh.invokeWithArguments((List)RT.cons(this, arglist));
@@ -15,8 +15,8 @@ package clojure.lang;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 public final class LazySeq extends Obj implements ISeq, Sequential, List, IPending, IHashEq{
 
@@ -25,17 +25,43 @@ private static final long serialVersionUID = -7345643944998411680L;
 private java.util.function.Supplier fn;
 private Object sv;
 private ISeq s;
-private Lock lock;
+// null while fn has not been called, FORCED once its result is in sv,
+// REALIZED once s is valid, and the realizing thread while one is at
+// work.  Read with acquire and written with release semantics, which
+// publishes fn, sv, and s.  The sentinels are not serializable, and
+// `readObject` derives the state from the other fields instead.
+private transient Object state;
+
+private static final Object FORCED = new Object();
+private static final Object REALIZED = new Object();
+private static final VarHandle STATE;
+static {
+	try {
+		STATE = MethodHandles.lookup().findVarHandle(LazySeq.class, "state", Object.class);
+	} catch (ReflectiveOperationException e) {
+		throw new ExceptionInInitializerError(e);
+	}
+}
 
 public LazySeq(java.util.function.Supplier fn){
 	this.fn = fn;
-	lock = new ReentrantLock();
 }
 
 private LazySeq(IPersistentMap meta, ISeq seq){
 	super(meta);
 	fn = null;
 	s = seq;
+	state = REALIZED;
+}
+
+private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+	in.defaultReadObject();
+	if(fn != null)
+		state = null;
+	else if(sv != null)
+		state = FORCED;
+	else
+		state = REALIZED;
 }
 
 public Obj withMeta(IPersistentMap meta){
@@ -44,29 +70,33 @@ public Obj withMeta(IPersistentMap meta){
 	return new LazySeq(meta, seq());
 }
 
-// MUST be locked when called!
+// Makes sure that fn has been called, and returns with a state of
+// FORCED or REALIZED.
 final private void force() {
-	if (fn != null) {
-		sv = fn.get();
-		fn = null;
-	}
-}
-
-final private void lockAndForce() {
-	Lock l = lock;
-	if(l != null) {
-		l.lock();
-		try {
-			force();
-		} finally {
-			l.unlock();
+	for(int round = 0; ; round++) {
+		Object st = STATE.getAcquire(this);
+		if(st == FORCED || st == REALIZED)
+			return;
+		if(st == null) {
+			if(STATE.compareAndSet(this, null, Thread.currentThread())) {
+				try {
+					sv = fn.get();
+				} catch (Throwable t) {
+					STATE.setRelease(this, null);
+					throw t;
+				}
+				fn = null;
+				STATE.setRelease(this, FORCED);
+				return;
+			}
+		} else {
+			Util.awaitRealizer(st, round);
 		}
 	}
 }
 
 final private Object sval() {
-	if(fn != null)
-	    lockAndForce();
+	force();
 	if(sv != null)
 		return sv;
 	return s;
@@ -80,29 +110,41 @@ final private Object unwrap(Object ls){
 }
 
 final private void realize() {
-	Lock l = lock;
-	if(l != null) {
-		l.lock();
-		try {
-            //must re-examine under lock
-            if(lock != null) {
-                force();
-                Object ls = sv;
-                sv = null;
-                if(ls instanceof LazySeq)
-                    ls = unwrap(ls);
-                s = RT.seq(ls);
-                lock = null;
-                }
-		    }
-        finally {
-			l.unlock();
+	for(int round = 0; ; round++) {
+		Object st = STATE.getAcquire(this);
+		if(st == REALIZED)
+			return;
+		if(st == null || st == FORCED) {
+			if(STATE.compareAndSet(this, st, Thread.currentThread())) {
+				Object ls;
+				try {
+					ls = (st == null) ? fn.get() : sv;
+				} catch (Throwable t) {
+					STATE.setRelease(this, null);
+					throw t;
+				}
+				fn = null;
+				sv = ls;
+				try {
+					if(ls instanceof LazySeq)
+						ls = unwrap(ls);
+					s = RT.seq(ls);
+				} catch (Throwable t) {
+					STATE.setRelease(this, FORCED);
+					throw t;
+				}
+				sv = null;
+				STATE.setRelease(this, REALIZED);
+				return;
+			}
+		} else {
+			Util.awaitRealizer(st, round);
 		}
 	}
 }
 
 public final ISeq seq(){
-    if(lock != null)
+    if(STATE.getAcquire(this) != REALIZED)
         realize();
 	return s;
 }
@@ -287,18 +329,7 @@ public boolean addAll(int index, Collection c){
 }
 
 public boolean isRealized(){
-	if(lock != null) {
-		Lock l = lock;
-		if(l != null) {
-			l.lock();
-			try {
-				return lock == null;
-			} finally {
-				l.unlock();
-			}
-		}
-	}
-	return true;
+	return STATE.getAcquire(this) == REALIZED;
 }
 }
 
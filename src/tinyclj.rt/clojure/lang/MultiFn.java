@@ -13,6 +13,7 @@
 package clojure.lang;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
@@ -26,8 +27,39 @@ final String name;
 final ReentrantReadWriteLock rw;
 volatile IPersistentMap methodTable;
 volatile IPersistentMap preferTable;
-volatile IPersistentMap methodCache;
-volatile Object cachedHierarchy;
+volatile MethodCache methodCache;
+
+// Dispatch values resolved against one state of the method table,
+// prefer table, and hierarchy.  Any change of this state replaces
+// the whole cache, so that lookups need no lock.  Methods found for
+// an outdated cache are still stored there, but are never seen again.
+static final class MethodCache{
+	final IPersistentMap methodTable;
+	final IPersistentMap preferTable;
+	final Object hierarchy;
+	final ConcurrentHashMap<Object,IFn> methods = new ConcurrentHashMap<Object,IFn>();
+	// most recently used entry, compared by identity; racy on purpose
+	CacheEntry last;
+
+	MethodCache(IPersistentMap methodTable, IPersistentMap preferTable, Object hierarchy){
+		this.methodTable = methodTable;
+		this.preferTable = preferTable;
+		this.hierarchy = hierarchy;
+	}
+}
+
+static final class CacheEntry{
+	final Object dispatchVal;
+	final IFn fn;
+
+	CacheEntry(Object dispatchVal, IFn fn){
+		this.dispatchVal = dispatchVal;
+		this.fn = fn;
+	}
+}
+
+// ConcurrentHashMap does not permit null keys
+private static final Object NIL_DISPATCH_VAL = new Object();
 
 // static final Var assoc = RT.var("clojure.core", "assoc");
 // static final Var dissoc = RT.var("clojure.core", "dissoc");
@@ -52,17 +84,16 @@ public MultiFn(String name, IFn dispatchFn, Object defaultDispatchVal, IRef hier
 	this.dispatchFn = dispatchFn;
 	this.defaultDispatchVal = defaultDispatchVal;
 	this.methodTable = PersistentHashMap.EMPTY;
-	this.methodCache = getMethodTable();
 	this.preferTable = PersistentHashMap.EMPTY;
     this.hierarchy = hierarchy;
-	cachedHierarchy = null;
+	this.methodCache = new MethodCache(methodTable, preferTable, null);
 }
 
 public MultiFn reset(){
 	rw.writeLock().lock();
 	try{
-		methodTable = methodCache = preferTable = PersistentHashMap.EMPTY;
-		cachedHierarchy = null;
+		methodTable = preferTable = PersistentHashMap.EMPTY;
+		methodCache = new MethodCache(methodTable, preferTable, null);
 		return this;
 	}
 	finally {
@@ -100,7 +131,7 @@ public MultiFn preferMethod(Object dispatchValX, Object dispatchValY) {
 	rw.writeLock().lock();
 	try
 		{
-		if(prefers(hierarchy.deref(), dispatchValY, dispatchValX))
+		if(prefers(getPreferTable(), hierarchy.deref(), dispatchValY, dispatchValX))
 			throw new IllegalStateException(
 					String.format("Preference conflict in multimethod '%s': %s is already preferred to %s",
 					              name, dispatchValY, dispatchValX));
@@ -117,18 +148,18 @@ public MultiFn preferMethod(Object dispatchValX, Object dispatchValY) {
 		}
 }
 
-private boolean prefers(Object hierarchy, Object x, Object y) {
-	IPersistentSet xprefs = (IPersistentSet) getPreferTable().valAt(x);
+private boolean prefers(IPersistentMap pt, Object hierarchy, Object x, Object y) {
+	IPersistentSet xprefs = (IPersistentSet) pt.valAt(x);
 	if(xprefs != null && xprefs.contains(y))
 		return true;
 	for(ISeq ps = RT.seq(parents().invoke(hierarchy, y)); ps != null; ps = ps.next())
 		{
-		if(prefers(hierarchy, x, ps.first()))
+		if(prefers(pt, hierarchy, x, ps.first()))
 			return true;
 		}
 	for(ISeq ps = RT.seq(parents().invoke(hierarchy, x)); ps != null; ps = ps.next())
 		{
-		if(prefers(hierarchy, ps.first(), y))
+		if(prefers(pt, hierarchy, ps.first(), y))
 			return true;
 		}
 	return false;
@@ -138,17 +169,17 @@ private boolean isA(Object hierarchy, Object x, Object y) {
     return RT.booleanCast(isa().invoke(hierarchy, x, y));
 }
 
-private boolean dominates(Object hierarchy, Object x, Object y) {
-	return prefers(hierarchy, x, y) || isA(hierarchy, x, y);
+private boolean dominates(IPersistentMap pt, Object hierarchy, Object x, Object y) {
+	return prefers(pt, hierarchy, x, y) || isA(hierarchy, x, y);
 }
 
-private IPersistentMap resetCache() {
+private MethodCache resetCache() {
 	rw.writeLock().lock();
 	try
 		{
-		methodCache = getMethodTable();
-		cachedHierarchy = hierarchy.deref();
-		return methodCache;
+		MethodCache c = new MethodCache(methodTable, preferTable, hierarchy.deref());
+		methodCache = c;
+		return c;
 		}
 	finally
 		{
@@ -157,12 +188,22 @@ private IPersistentMap resetCache() {
 }
 
  public IFn getMethod(Object dispatchVal) {
-	if(cachedHierarchy != hierarchy.deref())
-		resetCache();
-	IFn targetFn = (IFn) methodCache.valAt(dispatchVal);
-	if(targetFn != null)
-		return targetFn;
-	return findAndCacheBestMethod(dispatchVal);
+	MethodCache c = methodCache;
+	if(c.hierarchy != hierarchy.deref())
+		c = resetCache();
+	CacheEntry last = c.last;
+	if(last != null && last.dispatchVal == dispatchVal)
+		return last.fn;
+	IFn targetFn = c.methods.get(dispatchVal == null ? NIL_DISPATCH_VAL : dispatchVal);
+	if(targetFn == null)
+		{
+		targetFn = findBestMethod(c, dispatchVal);
+		if(targetFn == null)
+			return null;
+		c.methods.putIfAbsent(dispatchVal == null ? NIL_DISPATCH_VAL : dispatchVal, targetFn);
+		}
+	c.last = new CacheEntry(dispatchVal, targetFn);
+	return targetFn;
 }
 
 private IFn getFn(Object dispatchVal) {
@@ -173,67 +214,30 @@ private IFn getFn(Object dispatchVal) {
 	return targetFn;
 }
 
-private IFn findAndCacheBestMethod(Object dispatchVal) {
-	rw.readLock().lock();
-	Object bestValue;
-	IPersistentMap mt = methodTable;
-	IPersistentMap pt = preferTable;
-	Object ch = cachedHierarchy;
-	try
-		{
-		Map.Entry bestEntry = null;
-		for(Object o : getMethodTable())
-			{
-			Map.Entry e = (Map.Entry) o;
-			if(isA(ch, dispatchVal, e.getKey()))
-				{
-				if(bestEntry == null || dominates(ch, e.getKey(), bestEntry.getKey()))
-					bestEntry = e;
-				if(!dominates(ch, bestEntry.getKey(), e.getKey()))
-					throw new IllegalArgumentException(
-							String.format(
-									"Multiple methods in multimethod '%s' match dispatch value: %s -> %s and %s, and neither is preferred",
-									name, dispatchVal, e.getKey(), bestEntry.getKey()));
-				}
-			}
-		if(bestEntry == null)
-			{
-			bestValue = methodTable.valAt(defaultDispatchVal);
-		        if(bestValue == null)
-				return null;
-			}
-		else
-			bestValue = bestEntry.getValue();
-		}
-	finally
-		{
-		rw.readLock().unlock();
-		}
-
-
-	//ensure basis has stayed stable throughout, else redo
-	rw.writeLock().lock();
-	try
+// Works on the consistent state captured by `c`, and needs no lock.
+private IFn findBestMethod(MethodCache c, Object dispatchVal) {
+	IPersistentMap mt = c.methodTable;
+	IPersistentMap pt = c.preferTable;
+	Object ch = c.hierarchy;
+	Map.Entry bestEntry = null;
+	for(Object o : mt)
 		{
-		if( mt == methodTable &&
-		    pt == preferTable &&
-		    ch == cachedHierarchy &&
-			cachedHierarchy == hierarchy.deref())
-			{
-			//place in cache
-			methodCache = methodCache.assoc(dispatchVal, bestValue);
-			return (IFn) bestValue;
-			}
-		else
+		Map.Entry e = (Map.Entry) o;
+		if(isA(ch, dispatchVal, e.getKey()))
 			{
-			resetCache();
-			return findAndCacheBestMethod(dispatchVal);
+			if(bestEntry == null || dominates(pt, ch, e.getKey(), bestEntry.getKey()))
+				bestEntry = e;
+			if(!dominates(pt, ch, bestEntry.getKey(), e.getKey()))
+				throw new IllegalArgumentException(
+						String.format(
+								"Multiple methods in multimethod '%s' match dispatch value: %s -> %s and %s, and neither is preferred",
+								name, dispatchVal, e.getKey(), bestEntry.getKey()));
 			}
 		}
-	finally
-		{
-		rw.writeLock().unlock();
-		}
+	if(bestEntry == null)
+		return (IFn) mt.valAt(defaultDispatchVal);
+	else
+		return (IFn) bestEntry.getValue();
 }
   
     public IPersistentMap getMethodTable() {
@@ -244,6 +244,21 @@ static private <T extends Throwable> void sneakyThrow0(Throwable t) throws T {
 	throw (T) t;
 }
 
+// Called by a thread that finds a LazySeq or Delay being realized by
+// the thread `owner`.  Spins for a few rounds, then yields, and finally
+// parks for increasing intervals, so that waiting allocates nothing.
+// Realizing a value from within its own realization is an error.
+static void awaitRealizer(Object owner, int round) {
+	if(owner == Thread.currentThread())
+		throw new IllegalStateException("Recursive realization of lazy value");
+	if(round < 64)
+		Thread.onSpinWait();
+	else if(round < 128)
+		Thread.yield();
+	else
+		java.util.concurrent.locks.LockSupport.parkNanos(1000L << Math.min(round - 128, 10));
+}
+
 // static public Object loadWithClass(String scriptbase, Class<?> loadFrom) throws IOException, ClassNotFoundException{
 //     RT.init();
 //     Var.pushThreadBindings(RT.map(new Object[] { Compiler.LOADER, loadFrom.getClassLoader() }));
@@ -14,6 +14,10 @@ package clojure.lang;
 
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -25,8 +29,10 @@ static class TBox{
 
 volatile Object val;
 final Thread thread;
+final Var var;
 
-public TBox(Thread t, Object val){
+public TBox(Var var, Thread t, Object val){
+	this.var = var;
 	this.thread = t;
 	this.val = val;
 }
@@ -48,26 +54,51 @@ static public class Unbound extends AFn{
 	}
 }
 
+// The bindings of a frame are a flat array indexed by the slot of the
+// var, with null for an unbound var.  A var gets its slot when it is
+// thread bound for the first time.  Looking up a binding is an array
+// access, and pushing a frame copies one array of references instead
+// of adding each var to a persistent hash map.  A frame is never
+// modified after it has been created, which makes conveying it to
+// another thread a matter of passing the reference.  The array only
+// extends to the highest slot bound in the frame or its ancestors.
 static class Frame{
-	final static Frame TOP = new Frame(PersistentHashMap.EMPTY, null);
-	//Var->TBox
-	Associative bindings;
-	//Var->val
-//	Associative frameBindings;
-	Frame prev;
-
-	public Frame(Associative bindings, Frame prev){
-//		this.frameBindings = frameBindings;
-		this.bindings = bindings;
+	final static Frame TOP = new Frame(new TBox[0], null);
+	//slot->TBox
+	final TBox[] boxes;
+	final Frame prev;
+
+	public Frame(TBox[] boxes, Frame prev){
+		this.boxes = boxes;
 		this.prev = prev;
 	}
 
     	protected Object clone() {
-		return new Frame(this.bindings, null);
+		return new Frame(this.boxes, null);
     	}
 
 }
 
+// A slot is released when its var has been garbage collected, and
+// handed out again by `assignSlot`.  This cannot mix up bindings: a
+// TBox references its var, so a var is not collected while any frame
+// holds a binding for it.  Vars created over and over, like those of
+// `with-local-vars`, keep reusing the same few slots.
+private static final class SlotRef extends WeakReference<Var>{
+	final int slot;
+
+	SlotRef(Var v, int slot){
+		super(v, slotQueue);
+		this.slot = slot;
+	}
+}
+
+private static final ReferenceQueue<Var> slotQueue = new ReferenceQueue<Var>();
+//slot->SlotRef of the var holding it, guarded by Var.class
+private static SlotRef[] slotRefs = new SlotRef[0];
+//released slots, guarded by Var.class
+private static final BitSet freeSlots = new BitSet();
+
 static final ThreadLocal<Frame> dvals = new ThreadLocal<Frame>(){
 
 	protected Frame initialValue(){
@@ -88,6 +119,7 @@ volatile Object root;
 
 volatile boolean dynamic = false;
 transient final AtomicBoolean threadBound;
+transient volatile int slot = -1;
 public final Symbol sym;
 public final Namespace ns;
 
@@ -189,7 +221,7 @@ Var(Namespace ns, Symbol sym, Object root){
 }
 
 public boolean isBound(){
-	return hasRoot() || (threadBound.get() && dvals.get().bindings.containsKey(this));
+	return hasRoot() || getThreadBinding() != null;
 }
 
 final public Object get(){
@@ -317,9 +349,32 @@ synchronized public Object alterRoot(IFn fn, ISeq args) {
 	return newRoot;
 }
 
+private static synchronized int assignSlot(Var v){
+	if(v.slot < 0)
+		{
+		for(SlotRef r = (SlotRef) slotQueue.poll(); r != null; r = (SlotRef) slotQueue.poll())
+			{
+			slotRefs[r.slot] = null;
+			freeSlots.set(r.slot);
+			}
+		int s = freeSlots.nextSetBit(0);
+		if(s < 0)
+			{
+			s = slotRefs.length;
+			slotRefs = Arrays.copyOf(slotRefs, Math.max(8, 2 * s));
+			freeSlots.set(s + 1, slotRefs.length);
+			}
+		else
+			freeSlots.clear(s);
+		slotRefs[s] = new SlotRef(v, s);
+		v.slot = s;
+		}
+	return v.slot;
+}
+
 public static void pushThreadBindings(Associative bindings){
 	Frame f = dvals.get();
-	Associative bmap = f.bindings;
+	int n = f.boxes.length;
 	for(ISeq bs = bindings.seq(); bs != null; bs = bs.next())
 		{
 		IMapEntry e = (IMapEntry) bs.first();
@@ -327,10 +382,21 @@ public static void pushThreadBindings(Associative bindings){
 		if(!v.dynamic)
 			throw new IllegalStateException(String.format("Can't dynamically bind non-dynamic var: %s/%s", v.ns, v.sym));
 		v.validate(v.getValidator(), e.val());
+		int s = v.slot;
+		if(s < 0)
+			s = assignSlot(v);
+		n = Math.max(n, s + 1);
+		}
+	TBox[] boxes = Arrays.copyOf(f.boxes, n);
+	Thread t = Thread.currentThread();
+	for(ISeq bs = bindings.seq(); bs != null; bs = bs.next())
+		{
+		IMapEntry e = (IMapEntry) bs.first();
+		Var v = (Var) e.key();
 		v.threadBound.set(true);
-		bmap = bmap.assoc(v, new TBox(Thread.currentThread(), e.val()));
+		boxes[v.slot] = new TBox(v, t, e.val());
 		}
-	dvals.set(new Frame(bmap, f));
+	dvals.set(new Frame(boxes, f));
 }
 
 public static void popThreadBindings(){
@@ -345,14 +411,12 @@ public static void popThreadBindings(){
 }
 
 public static Associative getThreadBindings(){
-	Frame f = dvals.get();
+	TBox[] boxes = dvals.get().boxes;
 	IPersistentMap ret = PersistentHashMap.EMPTY;
-	for(ISeq bs = f.bindings.seq(); bs != null; bs = bs.next())
+	for(TBox b : boxes)
 		{
-		IMapEntry e = (IMapEntry) bs.first();
-		Var v = (Var) e.key();
-		TBox b = (TBox) e.val();
-		ret = ret.assoc(v, b.val);
+		if(b != null)
+			ret = ret.assoc(b.var, b.val);
 		}
 	return ret;
 }
@@ -360,9 +424,10 @@ public static Associative getThreadBindings(){
 public final TBox getThreadBinding(){
 	if(threadBound.get())
 		{
-		IMapEntry e = dvals.get().bindings.entryAt(this);
-		if(e != null)
-			return (TBox) e.val();
+		TBox[] boxes = dvals.get().boxes;
+		int s = slot;
+		if(s < boxes.length)
+			return boxes[s];
 		}
 	return null;
 }
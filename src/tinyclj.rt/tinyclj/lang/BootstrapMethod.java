@@ -23,19 +23,86 @@ public final class BootstrapMethod {
     return insertArguments(arityMh, 1, n).asType(getterMt);
   }
   
+  // Number of distinct arity method handles an `invokeFn` call site
+  // links to directly.  Beyond this, the call site goes megamorphic.
+  private static final int INLINE_CACHE_LIMIT = 4;
+
+  private static final MethodHandle IS_SAME_MH;
+  private static final MethodHandle RELINK_MH;
+  static {
+    try {
+      var l = lookup();
+      IS_SAME_MH = l.findStatic(BootstrapMethod.class, "isSame",
+                                methodType(Boolean.TYPE, MethodHandle.class,
+                                           MethodHandle.class));
+      RELINK_MH = l.findVirtual(FnCallSite.class, "relink",
+                                methodType(Object.class, Object[].class));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static boolean isSame(MethodHandle a, MethodHandle b) {
+    return a == b;
+  }
+
+  // Call site of `invokeFn` with an inline cache.  Each entry guards
+  // on the identity of the arity's method handle, as returned by
+  // `__arityOrNull`, and calls this handle directly.  For compiled
+  // functions the handle is a constant of the function's class, and
+  // for a `StaticFn` it is specific to the instance.  With a constant
+  // target the JIT can inline the function body into the caller.
+  //
+  // The arity's handle is computed once, in front of the chain of
+  // entries, and each entry tests this value.  A miss reaches
+  // `relink` with the handle already in hand.
+  private static final class FnCallSite extends MutableCallSite {
+    private final MethodHandle arityMh; // fnValue -> arity's method handle
+    private final MethodHandle generic; // megamorphic target
+    private MethodHandle chain; // (arity's handle, fnValue, args...) -> result
+    private int entries;        // racy, only a heuristic
+
+    FnCallSite(MethodType type, MethodHandle arityMh) {
+      super(type);
+      this.arityMh = arityMh;
+      // final call: MethodHandle.invoke(arityMh, fnValue, args...)
+      var invokeArity = invoker(type);
+      // put arity's method handle in front of fnValue
+      this.generic = foldArguments(invokeArity, arityMh);
+      this.chain = RELINK_MH.bindTo(this)
+        .asCollector(Object[].class, type.parameterCount()+1)
+        .asType(type.insertParameterTypes(0, MethodHandle.class));
+      setTarget(foldArguments(chain, arityMh));
+    }
+
+    // `args` holds the arity's method handle, followed by the
+    // arguments of the call site.
+    private Object relink(Object[] args) throws Throwable {
+      var type = type();
+      var mh = (MethodHandle)args[0];
+      if (entries < INLINE_CACHE_LIMIT) {
+        entries++;
+        var test = dropArguments(insertArguments(IS_SAME_MH, 1, mh),
+                                 1, type.parameterList());
+        chain = guardWithTest(test,
+                              dropArguments(mh.asType(type), 0, MethodHandle.class),
+                              chain);
+        setTarget(foldArguments(chain, arityMh));
+      } else {
+        setTarget(generic);
+      }
+      return invoker(type).invokeWithArguments(args);
+    }
+  }
+  
   public static CallSite invokeFn(Lookup lookup, String name, MethodType type)
     throws NoSuchMethodException, IllegalAccessException
   {
     // method handle producing the arity's method handle, with
     // n=number of args
     var arityMh = getArityMh(lookup, type.parameterType(0), type.parameterCount()-1);
-    
-    // final call: MethodHandle.invoke(arityMh, fnValue, args...)
-    var invokeArity = invoker(type);
-    // put arity's method handle in front of fnValue
-    var mh = foldArguments(invokeArity, arityMh);
     // call site: invokeFn(fnValue, args...)
-    return new ConstantCallSite(mh);
+    return new FnCallSite(type, arityMh);
   }
 
 
@@ -91,28 +158,28 @@ public final class BootstrapMethod {
       }
     }
 
-    // create key/value pairs, mapping single guards to their clause code
-    var kvs = new Object[cnt*2];
-    int i = 0;                  // index into kvs
+    // map single guards to their clause code
+    var keys = new Object[cnt];
+    var codes = new int[cnt];
+    int i = 0;                  // index into keys and codes
     int code = 0;               // clause code
     for (Object guard : guards) {
       if (guard instanceof clojure.lang.ISeq) { // aka `seq?`
         for (Object g : (java.util.List)guard) {
-          kvs[i++] = g;
-          kvs[i++] = code;
+          keys[i] = g;
+          codes[i++] = code;
         }
       } else {
-        kvs[i++] = guard;
-        kvs[i++] = code;
+        keys[i] = guard;
+        codes[i++] = code;
       }
       code++;
     }
-    var m = clojure.lang.RT.mapUniqueKeys(kvs);
-    
-    // call RT/caseClauseCode with `m` as its implicit first argument
-    var cccMt = methodType(Integer.TYPE, clojure.lang.IPersistentMap.class,
-                           Object.class);
-    var cccMh = lookup.findStatic(tinyclj.lang.RT.class, "caseClauseCode", cccMt);
-    return new ConstantCallSite(insertArguments(cccMh, 0, m));
+    var table = CaseTable.create(keys, codes);
+
+    // call CaseTable.clauseCode with `table` as its receiver
+    var cccMh = lookup.findVirtual(CaseTable.class, "clauseCode",
+                                   methodType(Integer.TYPE, Object.class));
+    return new ConstantCallSite(cccMh.bindTo(table));
   }
 }
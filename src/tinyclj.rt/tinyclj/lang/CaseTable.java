@@ -0,0 +1,151 @@
+// Copyright (c) Michael van Acken. All rights reserved.
+// The use and distribution terms for this software are covered by the
+// Eclipse Public License 2.0 (https://www.eclipse.org/legal/epl-v20.html)
+// which can be found in the file epl-v20.html at the root of this distribution.
+// By using this software in any fashion, you are agreeing to be bound by
+// the terms of this license.
+// You must not remove this notice, or any other, from this software.
+package tinyclj.lang;
+
+import clojure.lang.Keyword;
+import clojure.lang.Util;
+
+// Maps the test constants of a non-int `case*` to their clause code,
+// like the hash map it replaces, but without boxing and with a flat
+// open addressing table.  If all constants are strings or all are
+// keywords, then the cached `String.hashCode` or `Keyword.hasheq` is
+// used, and keywords are compared by identity.  The table size is
+// chosen so that no two constants share a slot if this is possible
+// with a table of at most `MAX_PERFECT_FACTOR` times the number of
+// constants.  A lookup then probes a single slot.
+public final class CaseTable {
+  // The clause code of a value matching no guard.  It selects the
+  // default path of the `case*` switch.
+  private static final int DEFAULT_CLAUSE_CODE = -1;
+  private static final int MAX_PERFECT_FACTOR = 8;
+
+  private static final int KIND_STRING = 0;
+  private static final int KIND_KEYWORD = 1;
+  private static final int KIND_OTHER = 2;
+
+  private final int kind;
+  private final Object[] keys;
+  private final int[] codes;      // DEFAULT_CLAUSE_CODE marks an empty slot
+  private final int mask;
+  private final boolean perfect;
+
+  private CaseTable(int kind, Object[] keys, int[] codes, boolean perfect) {
+    this.kind = kind;
+    this.keys = keys;
+    this.codes = codes;
+    this.mask = keys.length-1;
+    this.perfect = perfect;
+  }
+
+  private static int kindOf(Object[] guards) {
+    boolean strings = true, keywords = true;
+    for (Object g : guards) {
+      strings &= (g instanceof String);
+      keywords &= (g instanceof Keyword);
+    }
+    if (strings) {
+      return KIND_STRING;
+    } else if (keywords) {
+      return KIND_KEYWORD;
+    } else {
+      return KIND_OTHER;
+    }
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  private static int hash(int kind, Object x) {
+    switch (kind) {
+    case KIND_STRING: return spread(x.hashCode());
+    case KIND_KEYWORD: return spread(((Keyword)x).hasheq());
+    default: return spread(Util.hasheq(x));
+    }
+  }
+
+  private static int tableSize(int n) {
+    int size = 2;
+    while (size < 2*n) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  // Returns the table of size `size`, or null if `perfect` is true
+  // and two guards would share a slot.
+  private static CaseTable tryCreate(int kind, Object[] guards, int[] guardCodes,
+                                     int size, boolean perfect) {
+    var keys = new Object[size];
+    var codes = new int[size];
+    java.util.Arrays.fill(codes, DEFAULT_CLAUSE_CODE);
+    int mask = size-1;
+    for (int i = 0; i < guards.length; i++) {
+      int idx = hash(kind, guards[i]) & mask;
+      while (codes[idx] != DEFAULT_CLAUSE_CODE) {
+        if (perfect) {
+          return null;
+        }
+        idx = (idx+1) & mask;
+      }
+      keys[idx] = guards[i];
+      codes[idx] = guardCodes[i];
+    }
+    return new CaseTable(kind, keys, codes, perfect);
+  }
+
+  // `guards` holds distinct test constants, and `guardCodes` their
+  // non-negative clause codes.
+  public static CaseTable create(Object[] guards, int[] guardCodes) {
+    int kind = kindOf(guards);
+    int size = tableSize(guards.length);
+    for (int s = size; s <= size*MAX_PERFECT_FACTOR; s <<= 1) {
+      var t = tryCreate(kind, guards, guardCodes, s, true);
+      if (t != null) {
+        return t;
+      }
+    }
+    return tryCreate(kind, guards, guardCodes, size, false);
+  }
+
+  private boolean matches(Object key, Object select) {
+    switch (kind) {
+    case KIND_STRING: return key.equals(select);
+    case KIND_KEYWORD: return key == select;
+    default: return Util.equiv(key, select);
+    }
+  }
+
+  public int clauseCode(Object select) {
+    switch (kind) {
+    case KIND_STRING:
+      if (!(select instanceof String)) {
+        return DEFAULT_CLAUSE_CODE;
+      }
+      break;
+    case KIND_KEYWORD:
+      if (!(select instanceof Keyword)) {
+        return DEFAULT_CLAUSE_CODE;
+      }
+      break;
+    }
+
+    int idx = hash(kind, select) & mask;
+    while (true) {
+      int code = codes[idx];
+      if (code == DEFAULT_CLAUSE_CODE) {
+        return DEFAULT_CLAUSE_CODE;
+      } else if (matches(keys[idx], select)) {
+        return code;
+      } else if (perfect) {
+        return DEFAULT_CLAUSE_CODE;
+      }
+      idx = (idx+1) & mask;
+    }
+  }
+}
@@ -11,6 +11,7 @@ import java.net.URLClassLoader;
 import java.net.URL;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DynamicClassLoader extends URLClassLoader {
   static {
@@ -33,6 +34,11 @@ public class DynamicClassLoader extends URLClassLoader {
     }
   }
   
+  // Class files whose definition has been put off until the class is
+  // first requested, keyed by binary name.  See `deferClass`.
+  private final ConcurrentHashMap<String,byte[]> deferredClasses =
+    new ConcurrentHashMap<>();
+  
   public DynamicClassLoader(String name, URL[] urls, ClassLoader parent) {
     super(name, urls, parent);
     //printClassLoader(Thread.currentThread().getContextClassLoader());
@@ -49,6 +55,24 @@ public class DynamicClassLoader extends URLClassLoader {
     }
   }
 
+  // Registers a class file that is defined by `findClass` when the
+  // class is first needed, if ever.  Must be called before any class
+  // can refer to `binaryName`.
+  public void deferClass(String binaryName, byte[] classBytes) {
+    deferredClasses.put(binaryName, classBytes);
+  }
+
+  @Override
+  protected Class<?> findClass(String name) throws ClassNotFoundException {
+    // called with the class loading lock of `name` held
+    byte[] bs = deferredClasses.remove(name);
+    if (bs != null) {
+      return defineClass(name, bs, 0, bs.length);
+    } else {
+      return super.findClass(name);
+    }
+  }
+
   // Only called on a class loader that is private to the compiler.
   // Used to define a compilation helper class that does not
   // contribute to the application's bytecode.
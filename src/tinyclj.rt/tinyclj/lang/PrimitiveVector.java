@@ -0,0 +1,800 @@
+// Copyright (c) Michael van Acken. All rights reserved.
+// The use and distribution terms for this software are covered by the
+// Eclipse Public License 2.0 (https://www.eclipse.org/legal/epl-v20.html)
+// which can be found in the file epl-v20.html at the root of this distribution.
+// By using this software in any fashion, you are agreeing to be bound by
+// the terms of this license.
+// You must not remove this notice, or any other, from this software.
+package tinyclj.lang;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import clojure.lang.*;
+import clojure.lang.RT;
+
+// A persistent vector holding values of a single primitive type, as
+// created by `vector-of`.  It has the trie of `PersistentVector`, but
+// its leaves and its tail are primitive arrays of `Kind`.  The boxing
+// methods of `IPersistentVector` convert from and to the element type.
+// Next to them, there are typed accessors like `nthDouble`,
+// `consDouble`, and `assocDouble`, and `conjDouble` for transients.
+// When the static type of a vector is known to be `PrimitiveVector`,
+// these are invoked directly and no value is ever boxed.  The typed
+// accessor of a different element type throws ClassCastException.
+public final class PrimitiveVector extends APersistentVector
+  implements IObj, IEditableCollection, IReduce, IKVReduce {
+
+  public enum Kind {
+    INT {
+      Object newArray(int n) {return new int[n];}
+      Object copy(Object a) {return ((int[])a).clone();}
+      Object get(Object a, int i) {return ((int[])a)[i];}
+      void set(Object a, int i, Object x) {((int[])a)[i] = RT.intCast(x);}
+    },
+    LONG {
+      Object newArray(int n) {return new long[n];}
+      Object copy(Object a) {return ((long[])a).clone();}
+      Object get(Object a, int i) {return ((long[])a)[i];}
+      void set(Object a, int i, Object x) {((long[])a)[i] = RT.longCast(x);}
+    },
+    FLOAT {
+      Object newArray(int n) {return new float[n];}
+      Object copy(Object a) {return ((float[])a).clone();}
+      Object get(Object a, int i) {return ((float[])a)[i];}
+      void set(Object a, int i, Object x) {((float[])a)[i] = RT.floatCast(x);}
+    },
+    DOUBLE {
+      Object newArray(int n) {return new double[n];}
+      Object copy(Object a) {return ((double[])a).clone();}
+      Object get(Object a, int i) {return ((double[])a)[i];}
+      void set(Object a, int i, Object x) {((double[])a)[i] = RT.doubleCast(x);}
+    },
+    BYTE {
+      Object newArray(int n) {return new byte[n];}
+      Object copy(Object a) {return ((byte[])a).clone();}
+      Object get(Object a, int i) {return ((byte[])a)[i];}
+      void set(Object a, int i, Object x) {((byte[])a)[i] = RT.byteCast(x);}
+    },
+    SHORT {
+      Object newArray(int n) {return new short[n];}
+      Object copy(Object a) {return ((short[])a).clone();}
+      Object get(Object a, int i) {return ((short[])a)[i];}
+      void set(Object a, int i, Object x) {((short[])a)[i] = RT.shortCast(x);}
+    },
+    CHAR {
+      Object newArray(int n) {return new char[n];}
+      Object copy(Object a) {return ((char[])a).clone();}
+      Object get(Object a, int i) {return ((char[])a)[i];}
+      void set(Object a, int i, Object x) {((char[])a)[i] = RT.charCast(x);}
+    },
+    BOOLEAN {
+      Object newArray(int n) {return new boolean[n];}
+      Object copy(Object a) {return ((boolean[])a).clone();}
+      Object get(Object a, int i) {return ((boolean[])a)[i];}
+      void set(Object a, int i, Object x) {((boolean[])a)[i] = RT.booleanCast(x);}
+    };
+
+    final PrimitiveVector empty =
+      new PrimitiveVector(null, this, 0, 5, EMPTY_NODE, newArray(0));
+
+    abstract Object newArray(int n);
+    abstract Object copy(Object a);
+    abstract Object get(Object a, int i);
+    abstract void set(Object a, int i, Object x);
+
+    // `k` is one of the keywords `:int`, `:long`, `:float`,
+    // `:double`, `:byte`, `:short`, `:char`, or `:boolean`.
+    public static Kind of(Object k) {
+      if (k instanceof Keyword) {
+        switch (((Keyword)k).getName()) {
+        case "int": return INT;
+        case "long": return LONG;
+        case "float": return FLOAT;
+        case "double": return DOUBLE;
+        case "byte": return BYTE;
+        case "short": return SHORT;
+        case "char": return CHAR;
+        case "boolean": return BOOLEAN;
+        }
+      }
+      throw new IllegalArgumentException("Unsupported vector-of type: " + k);
+    }
+  }
+
+  // An inner node holds an Object[] of child nodes, a leaf node a
+  // primitive array of 32 elements.
+  static final class Node {
+    final AtomicReference<Thread> edit;
+    final Object array;
+
+    Node(AtomicReference<Thread> edit, Object array) {
+      this.edit = edit;
+      this.array = array;
+    }
+
+    Object[] children() {
+      return (Object[])array;
+    }
+  }
+
+  private static final AtomicReference<Thread> NOEDIT = new AtomicReference<>(null);
+  private static final Node EMPTY_NODE = new Node(NOEDIT, new Object[32]);
+
+  private final IPersistentMap _meta;
+  private final Kind kind;
+  private final int cnt;
+  private final int shift;
+  private final Node root;
+  private final Object tail;    // holds `cnt-tailoff()` elements
+
+  private PrimitiveVector(IPersistentMap meta, Kind kind, int cnt, int shift,
+                          Node root, Object tail) {
+    this._meta = meta;
+    this.kind = kind;
+    this.cnt = cnt;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  public static PrimitiveVector create(Object k) {
+    return Kind.of(k).empty;
+  }
+
+  public Kind kind() {
+    return kind;
+  }
+
+  private int tailoff() {
+    return (cnt < 32) ? 0 : ((cnt-1) >>> 5) << 5;
+  }
+
+  // Returns the primitive array holding the element at index `i`.
+  public Object arrayFor(int i) {
+    if (i >= 0 && i < cnt) {
+      if (i >= tailoff()) {
+        return tail;
+      }
+      Node node = root;
+      for (int level = shift; level > 0; level -= 5) {
+        node = (Node)node.children()[(i >>> level) & 0x01f];
+      }
+      return node.array;
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public Object nth(int i) {
+    return kind.get(arrayFor(i), i & 0x01f);
+  }
+
+  public Object nth(int i, Object notFound) {
+    return (i >= 0 && i < cnt) ? nth(i) : notFound;
+  }
+
+  public int nthInt(int i) {return ((int[])arrayFor(i))[i & 0x01f];}
+  public long nthLong(int i) {return ((long[])arrayFor(i))[i & 0x01f];}
+  public float nthFloat(int i) {return ((float[])arrayFor(i))[i & 0x01f];}
+  public double nthDouble(int i) {return ((double[])arrayFor(i))[i & 0x01f];}
+  public byte nthByte(int i) {return ((byte[])arrayFor(i))[i & 0x01f];}
+  public short nthShort(int i) {return ((short[])arrayFor(i))[i & 0x01f];}
+  public char nthChar(int i) {return ((char[])arrayFor(i))[i & 0x01f];}
+  public boolean nthBoolean(int i) {return ((boolean[])arrayFor(i))[i & 0x01f];}
+
+  public int count() {
+    return cnt;
+  }
+
+  public IPersistentMap meta() {
+    return _meta;
+  }
+
+  public PrimitiveVector withMeta(IPersistentMap meta) {
+    if (_meta == meta) {
+      return this;
+    }
+    return new PrimitiveVector(meta, kind, cnt, shift, root, tail);
+  }
+
+  public IPersistentCollection empty() {
+    return kind.empty.withMeta(_meta);
+  }
+
+  // Copy of the tail with room for one more element at its end, or a
+  // new tail of length 1 if the current one is full.
+  private Object grownTail() {
+    int n = cnt - tailoff();
+    if (n < 32) {
+      Object t = kind.newArray(n+1);
+      System.arraycopy(tail, 0, t, 0, n);
+      return t;
+    } else {
+      return kind.newArray(1);
+    }
+  }
+
+  // `newTail` is the result of `grownTail`, with its last element set.
+  private PrimitiveVector consTail(Object newTail) {
+    if (cnt - tailoff() < 32) {
+      return new PrimitiveVector(_meta, kind, cnt+1, shift, root, newTail);
+    }
+    Node newroot;
+    Node tailnode = new Node(root.edit, tail);
+    int newshift = shift;
+    if ((cnt >>> 5) > (1 << shift)) { // overflow root?
+      newroot = new Node(root.edit, new Object[32]);
+      newroot.children()[0] = root;
+      newroot.children()[1] = newPath(root.edit, shift, tailnode);
+      newshift += 5;
+    } else {
+      newroot = pushTail(shift, root, tailnode);
+    }
+    return new PrimitiveVector(_meta, kind, cnt+1, newshift, newroot, newTail);
+  }
+
+  private Node pushTail(int level, Node parent, Node tailnode) {
+    int subidx = ((cnt-1) >>> level) & 0x01f;
+    Node ret = new Node(parent.edit, parent.children().clone());
+    Node nodeToInsert;
+    if (level == 5) {
+      nodeToInsert = tailnode;
+    } else {
+      Node child = (Node)parent.children()[subidx];
+      nodeToInsert = (child != null)
+        ? pushTail(level-5, child, tailnode)
+        : newPath(root.edit, level-5, tailnode);
+    }
+    ret.children()[subidx] = nodeToInsert;
+    return ret;
+  }
+
+  private static Node newPath(AtomicReference<Thread> edit, int level, Node node) {
+    if (level == 0) {
+      return node;
+    }
+    Node ret = new Node(edit, new Object[32]);
+    ret.children()[0] = newPath(edit, level-5, node);
+    return ret;
+  }
+
+  public PrimitiveVector cons(Object val) {
+    Object t = grownTail();
+    int n = cnt - tailoff();
+    kind.set(t, (n < 32) ? n : 0, val);
+    return consTail(t);
+  }
+
+  public PrimitiveVector consInt(int val) {
+    int[] t = (int[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consLong(long val) {
+    long[] t = (long[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consFloat(float val) {
+    float[] t = (float[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consDouble(double val) {
+    double[] t = (double[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consByte(byte val) {
+    byte[] t = (byte[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consShort(short val) {
+    short[] t = (short[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consChar(char val) {
+    char[] t = (char[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+  public PrimitiveVector consBoolean(boolean val) {
+    boolean[] t = (boolean[])grownTail(); t[t.length-1] = val; return consTail(t);
+  }
+
+  // Replaces the array holding the element at index `i` with `leaf`.
+  private PrimitiveVector assocLeaf(int i, Object leaf) {
+    if (i >= tailoff()) {
+      return new PrimitiveVector(_meta, kind, cnt, shift, root, leaf);
+    }
+    return new PrimitiveVector(_meta, kind, cnt, shift,
+                               doAssoc(shift, root, i, leaf), tail);
+  }
+
+  private static Node doAssoc(int level, Node node, int i, Object leaf) {
+    if (level == 0) {
+      return new Node(node.edit, leaf);
+    }
+    Object[] a = node.children().clone();
+    int subidx = (i >>> level) & 0x01f;
+    a[subidx] = doAssoc(level-5, (Node)a[subidx], i, leaf);
+    return new Node(node.edit, a);
+  }
+
+  public PrimitiveVector assocN(int i, Object val) {
+    if (i >= 0 && i < cnt) {
+      Object leaf = kind.copy(arrayFor(i));
+      kind.set(leaf, i & 0x01f, val);
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return cons(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocInt(int i, int val) {
+    if (i >= 0 && i < cnt) {
+      int[] leaf = ((int[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consInt(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocLong(int i, long val) {
+    if (i >= 0 && i < cnt) {
+      long[] leaf = ((long[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consLong(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocFloat(int i, float val) {
+    if (i >= 0 && i < cnt) {
+      float[] leaf = ((float[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consFloat(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocDouble(int i, double val) {
+    if (i >= 0 && i < cnt) {
+      double[] leaf = ((double[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consDouble(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocByte(int i, byte val) {
+    if (i >= 0 && i < cnt) {
+      byte[] leaf = ((byte[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consByte(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocShort(int i, short val) {
+    if (i >= 0 && i < cnt) {
+      short[] leaf = ((short[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consShort(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocChar(int i, char val) {
+    if (i >= 0 && i < cnt) {
+      char[] leaf = ((char[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consChar(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector assocBoolean(int i, boolean val) {
+    if (i >= 0 && i < cnt) {
+      boolean[] leaf = ((boolean[])arrayFor(i)).clone();
+      leaf[i & 0x01f] = val;
+      return assocLeaf(i, leaf);
+    }
+    if (i == cnt) {
+      return consBoolean(val);
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public PrimitiveVector pop() {
+    if (cnt == 0) {
+      throw new IllegalStateException("Can't pop empty vector");
+    }
+    if (cnt == 1) {
+      return kind.empty.withMeta(_meta);
+    }
+    int n = cnt - tailoff();
+    if (n > 1) {
+      Object newTail = kind.newArray(n-1);
+      System.arraycopy(tail, 0, newTail, 0, n-1);
+      return new PrimitiveVector(_meta, kind, cnt-1, shift, root, newTail);
+    }
+    Object newtail = arrayFor(cnt-2);
+    Node newroot = popTail(shift, root);
+    int newshift = shift;
+    if (newroot == null) {
+      newroot = EMPTY_NODE;
+    }
+    if (shift > 5 && newroot.children()[1] == null) {
+      newroot = (Node)newroot.children()[0];
+      newshift -= 5;
+    }
+    return new PrimitiveVector(_meta, kind, cnt-1, newshift, newroot, newtail);
+  }
+
+  private Node popTail(int level, Node node) {
+    int subidx = ((cnt-2) >>> level) & 0x01f;
+    if (level > 5) {
+      Node newchild = popTail(level-5, (Node)node.children()[subidx]);
+      if (newchild == null && subidx == 0) {
+        return null;
+      }
+      Node ret = new Node(root.edit, node.children().clone());
+      ret.children()[subidx] = newchild;
+      return ret;
+    } else if (subidx == 0) {
+      return null;
+    } else {
+      Node ret = new Node(root.edit, node.children().clone());
+      ret.children()[subidx] = null;
+      return ret;
+    }
+  }
+
+  public Iterator iterator() {
+    return new Iterator() {
+      int i = 0;
+      Object leaf = null;
+
+      public boolean hasNext() {
+        return i < cnt;
+      }
+
+      public Object next() {
+        if (i >= cnt) {
+          throw new NoSuchElementException();
+        }
+        if ((i & 0x01f) == 0) {
+          leaf = arrayFor(i);
+        }
+        return kind.get(leaf, i++ & 0x01f);
+      }
+    };
+  }
+
+  private Object reduceFrom(IFn f, Object acc, int start) {
+    var mh = IFn.__arity(f, 2);
+    try {
+      int i = start;
+      while (i < cnt) {
+        Object leaf = arrayFor(i);
+        int end = Math.min(cnt, (i | 0x01f) + 1);
+        for (; i < end; i++) {
+          acc = mh.invoke(f, acc, kind.get(leaf, i & 0x01f));
+          if (RT.isReduced(acc)) {
+            return ((IDeref)acc).deref();
+          }
+        }
+      }
+      return acc;
+    } catch (Throwable t) {
+      throw Util.sneakyThrow(t);
+    }
+  }
+
+  public Object reduce(IFn f) {
+    return (cnt == 0) ? f.invoke() : reduceFrom(f, nth(0), 1);
+  }
+
+  public Object reduce(IFn f, Object init) {
+    return reduceFrom(f, init, 0);
+  }
+
+  public Object kvreduce(IFn f, Object init) {
+    var mh = IFn.__arity(f, 3);
+    try {
+      int i = 0;
+      while (i < cnt) {
+        Object leaf = arrayFor(i);
+        int end = Math.min(cnt, (i | 0x01f) + 1);
+        for (; i < end; i++) {
+          init = mh.invoke(f, init, i, kind.get(leaf, i & 0x01f));
+          if (RT.isReduced(init)) {
+            return ((IDeref)init).deref();
+          }
+        }
+      }
+      return init;
+    } catch (Throwable t) {
+      throw Util.sneakyThrow(t);
+    }
+  }
+
+  public Transient asTransient() {
+    return new Transient(this);
+  }
+
+  public static final class Transient extends AFn
+    implements ITransientVector, ITransientAssociative2, Counted {
+    private final Kind kind;
+    private int cnt;
+    private int shift;
+    private Node root;
+    private Object tail;        // always has room for 32 elements
+
+    private Transient(PrimitiveVector v) {
+      this.kind = v.kind;
+      this.cnt = v.cnt;
+      this.shift = v.shift;
+      this.root = new Node(new AtomicReference<>(Thread.currentThread()),
+                           v.root.children().clone());
+      this.tail = kind.newArray(32);
+      System.arraycopy(v.tail, 0, tail, 0, v.cnt - v.tailoff());
+    }
+
+    private void ensureEditable() {
+      if (root.edit.get() == null) {
+        throw new IllegalAccessError("Transient used after persistent! call");
+      }
+    }
+
+    private Node ensureEditable(Node node) {
+      if (node.edit == root.edit) {
+        return node;
+      }
+      Object a = (node.array instanceof Object[])
+        ? ((Object[])node.array).clone()
+        : kind.copy(node.array);
+      return new Node(root.edit, a);
+    }
+
+    private int tailoff() {
+      return (cnt < 32) ? 0 : ((cnt-1) >>> 5) << 5;
+    }
+
+    public int count() {
+      ensureEditable();
+      return cnt;
+    }
+
+    public PrimitiveVector persistent() {
+      ensureEditable();
+      root.edit.set(null);
+      int n = cnt - tailoff();
+      Object trimmedTail = kind.newArray(n);
+      System.arraycopy(tail, 0, trimmedTail, 0, n);
+      return new PrimitiveVector(null, kind, cnt, shift, root, trimmedTail);
+    }
+
+    // Returns the tail after making room in it for the element at
+    // index `cnt`.
+    private Object tailForConj() {
+      if (cnt - tailoff() < 32) {
+        return tail;
+      }
+      Node tailnode = new Node(root.edit, tail);
+      tail = kind.newArray(32);
+      if ((cnt >>> 5) > (1 << shift)) { // overflow root?
+        Node newroot = new Node(root.edit, new Object[32]);
+        newroot.children()[0] = root;
+        newroot.children()[1] = newPath(root.edit, shift, tailnode);
+        root = newroot;
+        shift += 5;
+      } else {
+        root = pushTail(shift, root, tailnode);
+      }
+      return tail;
+    }
+
+    private Node pushTail(int level, Node parent, Node tailnode) {
+      Node ret = ensureEditable(parent);
+      int subidx = ((cnt-1) >>> level) & 0x01f;
+      Node nodeToInsert;
+      if (level == 5) {
+        nodeToInsert = tailnode;
+      } else {
+        Node child = (Node)ret.children()[subidx];
+        nodeToInsert = (child != null)
+          ? pushTail(level-5, child, tailnode)
+          : newPath(root.edit, level-5, tailnode);
+      }
+      ret.children()[subidx] = nodeToInsert;
+      return ret;
+    }
+
+    public Transient conj(Object val) {
+      ensureEditable();
+      kind.set(tailForConj(), cnt & 0x01f, val);
+      ++cnt;
+      return this;
+    }
+
+    public Transient conjInt(int val) {
+      ensureEditable(); ((int[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjLong(long val) {
+      ensureEditable(); ((long[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjFloat(float val) {
+      ensureEditable(); ((float[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjDouble(double val) {
+      ensureEditable(); ((double[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjByte(byte val) {
+      ensureEditable(); ((byte[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjShort(short val) {
+      ensureEditable(); ((short[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjChar(char val) {
+      ensureEditable(); ((char[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+    public Transient conjBoolean(boolean val) {
+      ensureEditable(); ((boolean[])tailForConj())[cnt & 0x01f] = val; ++cnt; return this;
+    }
+
+    private Object arrayFor(int i) {
+      if (i >= 0 && i < cnt) {
+        if (i >= tailoff()) {
+          return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= 5) {
+          node = (Node)node.children()[(i >>> level) & 0x01f];
+        }
+        return node.array;
+      }
+      throw new IndexOutOfBoundsException();
+    }
+
+    public Object nth(int i) {
+      ensureEditable();
+      return kind.get(arrayFor(i), i & 0x01f);
+    }
+
+    public Object nth(int i, Object notFound) {
+      return (i >= 0 && i < count()) ? nth(i) : notFound;
+    }
+
+    public Object valAt(Object key) {
+      return valAt(key, null);
+    }
+
+    public Object valAt(Object key, Object notFound) {
+      ensureEditable();
+      if (Util.isInteger(key)) {
+        int i = ((Number)key).intValue();
+        if (i >= 0 && i < cnt) {
+          return nth(i);
+        }
+      }
+      return notFound;
+    }
+
+    private static final Object NOT_FOUND = new Object();
+
+    public boolean containsKey(Object key) {
+      return valAt(key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    public IMapEntry entryAt(Object key) {
+      Object v = valAt(key, NOT_FOUND);
+      return (v != NOT_FOUND) ? MapEntry.create(key, v) : null;
+    }
+
+    public Object invoke(Object arg1) {
+      if (Util.isInteger(arg1)) {
+        return nth(((Number)arg1).intValue());
+      }
+      throw new IllegalArgumentException("Key must be integer");
+    }
+
+    public Transient assocN(int i, Object val) {
+      ensureEditable();
+      if (i >= 0 && i < cnt) {
+        if (i >= tailoff()) {
+          kind.set(tail, i & 0x01f, val);
+        } else {
+          root = doAssoc(shift, root, i, val);
+        }
+        return this;
+      }
+      if (i == cnt) {
+        return conj(val);
+      }
+      throw new IndexOutOfBoundsException();
+    }
+
+    public Transient assoc(Object key, Object val) {
+      if (Util.isInteger(key)) {
+        return assocN(((Number)key).intValue(), val);
+      }
+      throw new IllegalArgumentException("Key must be integer");
+    }
+
+    private Node doAssoc(int level, Node node, int i, Object val) {
+      Node ret = ensureEditable(node);
+      if (level == 0) {
+        kind.set(ret.array, i & 0x01f, val);
+      } else {
+        int subidx = (i >>> level) & 0x01f;
+        ret.children()[subidx] = doAssoc(level-5, (Node)ret.children()[subidx], i, val);
+      }
+      return ret;
+    }
+
+    public Transient pop() {
+      ensureEditable();
+      if (cnt == 0) {
+        throw new IllegalStateException("Can't pop empty vector");
+      }
+      if (cnt == 1 || ((cnt-1) & 0x01f) > 0) { // pop in tail?
+        --cnt;
+        return this;
+      }
+      Object newtail = editableArrayFor(cnt-2);
+      Node newroot = popTail(shift, root);
+      int newshift = shift;
+      if (newroot == null) {
+        newroot = new Node(root.edit, new Object[32]);
+      }
+      if (shift > 5 && newroot.children()[1] == null) {
+        newroot = ensureEditable((Node)newroot.children()[0]);
+        newshift -= 5;
+      }
+      root = newroot;
+      shift = newshift;
+      --cnt;
+      tail = newtail;
+      return this;
+    }
+
+    private Object editableArrayFor(int i) {
+      Node node = root;
+      for (int level = shift; level > 0; level -= 5) {
+        node = ensureEditable((Node)node.children()[(i >>> level) & 0x01f]);
+      }
+      return node.array;
+    }
+
+    private Node popTail(int level, Node node) {
+      node = ensureEditable(node);
+      int subidx = ((cnt-2) >>> level) & 0x01f;
+      if (level > 5) {
+        Node newchild = popTail(level-5, (Node)node.children()[subidx]);
+        if (newchild == null && subidx == 0) {
+          return null;
+        }
+        node.children()[subidx] = newchild;
+        return node;
+      } else if (subidx == 0) {
+        return null;
+      } else {
+        node.children()[subidx] = null;
+        return node;
+      }
+    }
+  }
+}
@@ -0,0 +1,183 @@
+// Copyright (c) Michael van Acken. All rights reserved.
+// The use and distribution terms for this software are covered by the
+// Eclipse Public License 2.0 (https://www.eclipse.org/legal/epl-v20.html)
+// which can be found in the file epl-v20.html at the root of this distribution.
+// By using this software in any fashion, you are agreeing to be bound by
+// the terms of this license.
+// You must not remove this notice, or any other, from this software.
+package tinyclj.lang;
+
+import java.lang.invoke.*;
+import static java.lang.invoke.MethodType.methodType;
+import static java.lang.invoke.MethodType.genericMethodType;
+import static java.lang.invoke.MethodHandles.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import clojure.lang.IFn;
+
+// Dispatch of a protocol function on the class of its first argument.
+// There is one call site per arity of the protocol function, and its
+// target is an inline cache: a chain of class identity tests, each
+// calling the implementation for its class.  Beyond
+// `INLINE_CACHE_LIMIT` classes, the call site looks up the
+// implementation in a per class table instead.
+//
+// The implementation for a class is provided by `resolve`, which maps
+// the first argument to the function to call.  The cached targets are
+// guarded by the current switch point of the protocol.  `extend`
+// invalidates it via `invalidate`, and the call sites relink on their
+// next invocation.
+public final class ProtocolMethod {
+  private static final int INLINE_CACHE_LIMIT = 8;
+  private static final int MAX_ARITY = 20;
+
+  private static final MethodHandle IS_CLASS_MH;
+  private static final MethodHandle IMPL_FOR_MH;
+  private static final MethodHandle RELINK_MH;
+  private static final MethodHandle ARITY_MH;
+  static {
+    try {
+      var l = lookup();
+      IS_CLASS_MH = l.findStatic(ProtocolMethod.class, "isClass",
+                                 methodType(Boolean.TYPE, Object.class,
+                                            Class.class));
+      IMPL_FOR_MH = l.findVirtual(Epoch.class, "implFor",
+                                  methodType(IFn.class, Object.class));
+      RELINK_MH = l.findVirtual(Site.class, "relink",
+                                methodType(Object.class, Object[].class));
+      ARITY_MH = l.findStatic(IFn.class, "__arity",
+                              methodType(MethodHandle.class, IFn.class,
+                                         Integer.TYPE));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static boolean isClass(Object x, Class<?> c) {
+    return cacheKey(x) == c;
+  }
+
+  private static Class<?> cacheKey(Object x) {
+    // no instance has class `void`, which makes it a key for nil
+    return (x == null) ? Void.TYPE : x.getClass();
+  }
+
+  // Implementations looked up while a switch point is valid.  A new
+  // epoch starts when the switch point is invalidated, so that entries
+  // of an outdated epoch are never visible again.
+  private final class Epoch {
+    final SwitchPoint switchPoint;
+    final ConcurrentHashMap<Class<?>,IFn> impls = new ConcurrentHashMap<>();
+
+    Epoch(SwitchPoint switchPoint) {
+      this.switchPoint = switchPoint;
+    }
+
+    IFn implFor(Object x) {
+      var c = cacheKey(x);
+      var f = impls.get(c);
+      if (f == null) {
+        f = (IFn)resolve.invoke(x);
+        impls.put(c, f);
+      }
+      return f;
+    }
+  }
+
+  private final class Site extends MutableCallSite {
+    private final MethodHandle relink;
+    private Epoch epoch;        // epoch of the current target
+    private MethodHandle chain; // class tests of `epoch`, ending in `relink`
+    private int entries;
+
+    Site(int n) {
+      super(genericMethodType(n));
+      this.relink = RELINK_MH.bindTo(this).asCollector(Object[].class, n)
+        .asType(type());
+      this.chain = relink;
+      setTarget(relink);
+    }
+
+    // Looks up the implementation, then its arity's method handle,
+    // and finally calls the handle.
+    private MethodHandle megamorphic(Epoch e) {
+      var type = type();
+      var invokeArity = MethodHandles.invoker(type.insertParameterTypes(0, IFn.class));
+      var callImpl = foldArguments(invokeArity,
+                                   insertArguments(ARITY_MH, 1, type.parameterCount()));
+      return foldArguments(callImpl, IMPL_FOR_MH.bindTo(e));
+    }
+
+    // Called on a cache miss.  Only installing the new target happens
+    // under the lock; the implementation runs after releasing it, so
+    // that it may itself dispatch on this site from another thread.
+    private Object relink(Object[] args) throws Throwable {
+      return link(args[0]).invokeWithArguments(args);
+    }
+
+    private synchronized MethodHandle link(Object x) {
+      var e = currentEpoch();
+      if (epoch != e) {
+        epoch = e;
+        chain = relink;
+        entries = 0;
+      }
+
+      var f = e.implFor(x);
+      var type = type();
+      var impl = insertArguments(IFn.__arity(f, type.parameterCount()), 0, f)
+        .asType(type);
+      if (entries >= INLINE_CACHE_LIMIT) {
+        setTarget(e.switchPoint.guardWithTest(megamorphic(e), relink));
+      } else {
+        entries++;
+        var test = dropArguments(insertArguments(IS_CLASS_MH, 1, cacheKey(x)),
+                                 1, type.parameterList().subList(1, type.parameterCount()));
+        chain = guardWithTest(test, impl, chain);
+        setTarget(e.switchPoint.guardWithTest(chain, relink));
+      }
+      return impl;
+    }
+  }
+
+  private final IFn resolve;    // first argument -> implementation
+  private final AtomicReference<SwitchPoint> switchPoint;
+  private final Site[] sites = new Site[MAX_ARITY+1];
+  private volatile Epoch epoch;
+
+  // `switchPoint` is shared by all methods of a protocol.
+  public ProtocolMethod(AtomicReference<SwitchPoint> switchPoint, IFn resolve) {
+    this.switchPoint = switchPoint;
+    this.resolve = resolve;
+  }
+
+  private synchronized Epoch currentEpoch() {
+    var sp = switchPoint.get();
+    var e = epoch;
+    if (e == null || e.switchPoint != sp) {
+      e = new Epoch(sp);
+      epoch = e;
+    }
+    return e;
+  }
+
+  // Returns a method handle taking `n` Object arguments and returning
+  // Object.  It calls the implementation for its first argument.
+  public synchronized MethodHandle invoker(int n) {
+    if (sites[n] == null) {
+      sites[n] = new Site(n);
+    }
+    return sites[n].dynamicInvoker();
+  }
+
+  public static AtomicReference<SwitchPoint> newSwitchPoint() {
+    return new AtomicReference<>(new SwitchPoint());
+  }
+
+  // Discards all cached implementations of the protocol methods using
+  // `switchPoint`.
+  public static void invalidate(AtomicReference<SwitchPoint> switchPoint) {
+    var old = switchPoint.getAndSet(new SwitchPoint());
+    SwitchPoint.invalidateAll(new SwitchPoint[] {old});
+  }
+}
@@ -19,11 +19,6 @@ import clojure.lang.ISeq;
 import clojure.lang.Cons;
 
 public final class RT {
-  private static final Integer DEFAULT_CLAUSE_CODE = -1;
-  public static int caseClauseCode(clojure.lang.IPersistentMap m, Object select) {
-    return ((Integer)m.valAt(select, DEFAULT_CLAUSE_CODE)).intValue();
-  }
-
   public static Exception noMatchingClause(Object value) {
     String msg = "No matching clause: "+value;
     return new IllegalArgumentException (msg);
@@ -61,6 +56,56 @@ public final class RT {
   }
 
 
+  // Names for `gensym` and auto-gensym.  Outside of an id scope, they
+  // are taken from the global counter `clojure.lang.RT.nextID()`,
+  // which makes them depend on the order in which threads call it.
+  // The compiler enters an id scope for each namespace and each
+  // function body it compiles.  The scope's name is taken from its
+  // parent scope at the point in the source where the function body
+  // is forked, so that all names generated within the scope are a
+  // function of source position.  A scope is only used by one thread
+  // at a time.
+  private static final class IdScope {
+    private final String name;
+    private int count;
+    IdScope(String name) {
+      this.name = name;
+    }
+  }
+  private static final ThreadLocal<IdScope> idScope = new ThreadLocal<>();
+
+  public static String nextIdString() {
+    var scope = idScope.get();
+    if (scope == null) {
+      return Integer.toString(clojure.lang.RT.nextID());
+    } else {
+      return scope.name + "_" + (scope.count++);
+    }
+  }
+
+  // Returns the previous scope, to be passed to `exitIdScope`.
+  public static Object enterIdScope(String name) {
+    var prev = idScope.get();
+    idScope.set(new IdScope(name));
+    return prev;
+  }
+
+  public static void exitIdScope(Object prev) {
+    idScope.set((IdScope)prev);
+  }
+
+  // A `ClassValue` computing its values with `f`.  Lets code that
+  // cannot subclass, like the compiler's, attach data to a class that
+  // is dropped together with the class.
+  public static <T> ClassValue<T> classValue(Function<Class<?>,T> f) {
+    return new ClassValue<T>() {
+      protected T computeValue(Class<?> cl) {
+        return f.apply(cl);
+      }
+    };
+  }
+
+  
   public static void createNamespace (String ns) {
     var nsSym = clojure.lang.Symbol.intern(ns);
     if (!nsSym.equals(clojure.lang.RT.CLOJURE_NS.name)) {